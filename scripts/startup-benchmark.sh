@@ -0,0 +1,41 @@
+#!/usr/bin/env bash
+# Compare wall time of the default launch against the fast-start launch and each of its parts:
+# lazy POI (no AWT auto-sizing), the CDS archive, and the C1-only/serial-GC JVM flags.
+# Build first with: mvn -Pfast-start package
+# Usage: scripts/startup-benchmark.sh [runs]   (run from the project root)
+set -euo pipefail
+
+RUNS="${1:-10}"
+JAR="target/excel-right-join-1.0.0.jar"
+ARCHIVE="target/excel-right-join-1.0.0.jsa"
+OUT_DIR="target/startup-benchmark"
+
+if [ ! -f "$JAR" ] || [ ! -f "$ARCHIVE" ]; then
+    echo "ERROR: $JAR or $ARCHIVE missing, run 'mvn -Pfast-start package' first" >&2
+    exit 1
+fi
+mkdir -p "$OUT_DIR"
+
+measure() {
+    local label="$1"
+    shift
+    local total=0
+    for _ in $(seq "$RUNS"); do
+        local start end
+        start=$(date +%s%N)
+        java "$@" -Dexcel.join.outputDir="$OUT_DIR" -jar "$JAR" > /dev/null 2>&1
+        end=$(date +%s%N)
+        total=$((total + (end - start) / 1000000))
+    done
+    printf '%-14s %6d ms avg over %d runs\n' "$label" $((total / RUNS)) "$RUNS"
+}
+
+JVM_FLAGS=(-XX:TieredStopAtLevel=1 -XX:+UseSerialGC)
+
+# One row per ingredient, then combinations, so each one's share of the gain is visible
+measure "default"
+measure "lazy POI" -Dexcel.join.fastStart=true
+measure "archive" -XX:SharedArchiveFile="$ARCHIVE"
+measure "JVM flags" "${JVM_FLAGS[@]}"
+measure "flags+lazy" "${JVM_FLAGS[@]}" -Dexcel.join.fastStart=true
+measure "fast-start" -XX:SharedArchiveFile="$ARCHIVE" "${JVM_FLAGS[@]}" -Dexcel.join.fastStart=true
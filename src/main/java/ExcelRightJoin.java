@@ -1,7 +1,34 @@
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.SharedFormula;
+import org.apache.poi.ss.formula.ptg.Ptg;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFName;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import javax.xml.parsers.ParserConfigurationException;
 import java.io.*;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class ExcelRightJoin {
@@ -17,6 +44,12 @@ public class ExcelRightJoin {
         "InputFolder/Data_Vendor.xlsx"
     };
     private static final String[] PREFERRED_JOIN_COLUMNS = {"id", "ID", "Id", "customer_id", "customerid", "CustomerId"};
+    private static final double NUMERIC_MATCH_TOLERANCE = 0.0001;
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+    private static final String OUTPUT_FOLDER = System.getProperty("excel.join.outputDir", "OutputFolder");
+    // Fast-start mode (cron runs) avoids POI features that pull in heavy subsystems, e.g. AWT fonts for auto-sizing
+    private static final boolean FAST_START = Boolean.getBoolean("excel.join.fastStart");
+    private static final Map<String, List<String>> COLUMN_ORDER_CACHE = new HashMap<>();
     
     public static void main(String[] args) {
         try {
@@ -31,7 +64,7 @@ public class ExcelRightJoin {
                 System.err.println("ERROR: Required Excel files not found!");
                 System.err.println("Looking for main data files: " + Arrays.toString(POSSIBLE_MAIN_FILES));
                 System.err.println("Looking for vendor data files: " + Arrays.toString(POSSIBLE_VENDOR_FILES));
-                return;
+                System.exit(1);
             }
             
             System.out.println("✅ Main Data File: " + mainDataFile);
@@ -39,30 +72,47 @@ public class ExcelRightJoin {
             
             // Generate output filename with timestamp
             String timestamp = new java.text.SimpleDateFormat("yyyyMMdd_HHmmss").format(new java.util.Date());
-            String outputFile = "OutputFolder/InnerJoinResult_" + timestamp + ".xlsx";
+            new File(OUTPUT_FOLDER).mkdirs();
+            String outputFile = OUTPUT_FOLDER + "/InnerJoinResult_" + timestamp + ".xlsx";
             
             System.out.println("\n=== Reading and Analyzing Files ===");
             
-            // Read both Excel files with enhanced error handling
-            List<Map<String, Object>> mainData = readExcelFile(mainDataFile);
-            List<Map<String, Object>> vendorData = readExcelFile(vendorDataFile);
-            
-            if (mainData.isEmpty()) {
-                System.err.println("ERROR: No data found in main file: " + mainDataFile);
-                return;
-            }
+            // Read vendor file first so its keys can pre-filter the main file
+            SheetReadResult vendorRead = readExcelFile(vendorDataFile, null);
+            List<Map<String, Object>> vendorData = vendorRead.rows;
             
             if (vendorData.isEmpty()) {
                 System.err.println("ERROR: No data found in vendor file: " + vendorDataFile);
+                System.exit(1);
+            }
+            
+            // Main records are joined as they stream in, so only joined records are held in memory
+            VendorKeyFilter vendorKeyFilter = new VendorKeyFilter(vendorRead);
+            InnerJoin innerJoin = new InnerJoin(vendorRead, mainDataFile, vendorKeyFilter::getJoinKeys);
+            SheetReadResult mainRead = readExcelFile(mainDataFile, vendorKeyFilter, innerJoin);
+            
+            if (mainRead.dataRows == 0) {
+                if (mainRead.prefilteredRows > 0) {
+                    System.err.println("WARNING: None of the " + mainRead.prefilteredRows
+                            + " main records have a join key present in the vendor data!");
+                } else {
+                    System.err.println("ERROR: No data found in main file: " + mainDataFile);
+                    System.exit(1);
+                }
                 return;
             }
             
             // Analyze file structures
-            analyzeFileStructure(mainDataFile, mainData, "MAIN DATA (Authoritative Source)");
-            analyzeFileStructure(vendorDataFile, vendorData, "VENDOR DATA");
+            analyzeFileStructure(mainDataFile, mainRead, "MAIN DATA (Authoritative Source)");
+            if (mainRead.prefilteredRows > 0) {
+                System.out.println("🧹 Records skipped by vendor key pre-filter: " + mainRead.prefilteredRows);
+            }
+            printColumnProfiles(mainRead);
+            analyzeFileStructure(vendorDataFile, vendorRead, "VENDOR DATA");
+            printColumnProfiles(vendorRead);
             
-            // Perform  inner join
-            List<Map<String, Object>> innerJoinResult = performInnerJoin(mainData, vendorData, mainDataFile);
+            // Complete the  inner join
+            List<Map<String, Object>> innerJoinResult = innerJoin.finish(mainRead);
             
             if (innerJoinResult.isEmpty()) {
                 System.err.println("WARNING: No matching records found between main data and vendor data!");
@@ -95,6 +145,8 @@ public class ExcelRightJoin {
             System.err.println("2. Check file permissions");
             System.err.println("3. Verify file formats are .xlsx");
             System.err.println("4. Ensure files contain proper header rows");
+            // Non-zero exit so cron and the fast-start training run see the failure
+            System.exit(1);
         }
     }
 
@@ -129,18 +181,18 @@ public class ExcelRightJoin {
     /**
      * Analyze and display file structure with enhanced details
      */
-    private static void analyzeFileStructure(String filePath, List<Map<String, Object>> data, String fileType) {
+    private static void analyzeFileStructure(String filePath, SheetReadResult read, String fileType) {
         System.out.println("\n=== " + fileType + " ===");
         System.out.println("📄 File: " + filePath);
-        System.out.println("📊 Total records: " + data.size());
+        System.out.println("📊 Total records: " + read.dataRows);
         
-        if (!data.isEmpty()) {
-            Set<String> columns = data.get(0).keySet();
+        if (read.sampleRow != null) {
+            Set<String> columns = read.sampleRow.keySet();
             System.out.println("📋 Columns (" + columns.size() + "): " + columns);
             
             // Show sample data
             System.out.println("📝 Sample record:");
-            Map<String, Object> sample = data.get(0);
+            Map<String, Object> sample = read.sampleRow;
             for (Map.Entry<String, Object> entry : sample.entrySet()) {
                 String value = entry.getValue() != null ? entry.getValue().toString() : "null";
                 if (value.length() > 30) {
@@ -151,146 +203,193 @@ public class ExcelRightJoin {
         }
     }
     
+    /**
+     * Print the column profiles gathered while reading a file
+     */
+    private static void printColumnProfiles(SheetReadResult read) {
+        if (read.prefilteredRows > 0) {
+            // Pre-filtered rows only had their key cell decoded, so the other columns cover kept rows only
+            System.out.println("🧪 Column profile (" + read.dataRows + " kept records; the join key column and the ragged-row check also cover "
+                    + read.prefilteredRows + " pre-filtered records):");
+        } else {
+            System.out.println("🧪 Column profile (" + read.dataRows + " records):");
+        }
+        for (ColumnProfile profile : read.columnProfiles) {
+            System.out.println("   " + profile);
+        }
+        if (read.raggedRows > 0) {
+            System.out.println("⚠️ Ragged records: " + read.raggedRows + ", e.g. rows " + read.raggedRowSamples);
+        }
+    }
+    
     /**
      * Read Excel file and return data as List of Maps - Enhanced version
      */
     public static List<Map<String, Object>> readExcelFile(String filePath) throws IOException {
-        List<Map<String, Object>> data = new ArrayList<>();
-        
-        FileInputStream fis = null;
-        Workbook workbook = null;
+        return readExcelFile(filePath, null).rows;
+    }
+    
+    /**
+     * Read Excel file, skipping rows whose join key the vendor key filter rules out.
+     * The sheet is streamed, and each row's cells stay raw text until needed: the key cell is
+     * decoded first, so rejected rows never have their other cells decoded or a row map allocated.
+     * Column profiles are built as rows are read, so no second pass over the data is needed.
+     */
+    public static SheetReadResult readExcelFile(String filePath, VendorKeyFilter keyFilter) throws IOException {
+        return readExcelFile(filePath, keyFilter, null);
+    }
+    
+    /**
+     * Read Excel file as above, handing each kept row to rowSink as it is read instead of keeping
+     * it in the result's rows (when rowSink is null the rows are kept)
+     */
+    public static SheetReadResult readExcelFile(String filePath, VendorKeyFilter keyFilter,
+            Consumer<Map<String, Object>> rowSink) throws IOException {
+        SheetReadResult result = new SheetReadResult();
+        SheetRowCollector collector = new SheetRowCollector(result, keyFilter, rowSink != null ? rowSink : result.rows::add);
         
         try {
-            fis = new FileInputStream(filePath);
-            workbook = new XSSFWorkbook(fis);
-            Sheet sheet = workbook.getSheetAt(0); // Read first sheet
-            
-            if (sheet.getLastRowNum() < 0) {
+            readFirstSheet(filePath, collector);
+            if (!collector.sawRows) {
                 System.out.println("WARNING: No data found in " + filePath);
-                return data;
+                return result;
             }
+            collector.finish();
+        } catch (Exception e) {
+            System.err.println("ERROR reading " + filePath + ": " + e.getMessage());
+            throw e; // Re-throw to be caught by main
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Stream the first sheet of a workbook row by row through the SAX event API
+     */
+    private static void readFirstSheet(String filePath, SheetRowConsumer consumer) throws IOException {
+        OPCPackage pkg = null;
+        InputStream sheetStream = null;
+        
+        try {
+            pkg = OPCPackage.open(new File(filePath), PackageAccess.READ);
+            XSSFReader reader = new XSSFReader(pkg);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            sheetStream = sheets.next();
             
-            // Find header row (check more rows for real data table)
-            List<String> headers = new ArrayList<>();
-            int headerRowIndex = -1;
-            
-            for (int rowIdx = 0; rowIdx <= Math.min(10, sheet.getLastRowNum()); rowIdx++) {
-                Row row = sheet.getRow(rowIdx);
-                if (row != null) {
-                    List<String> possibleHeaders = new ArrayList<>();
-                    boolean hasValidHeaders = false;
-                    int nonEmptyCount = 0;
-                    
-                    for (int cellIdx = 0; cellIdx < row.getLastCellNum(); cellIdx++) {
-                        Cell cell = row.getCell(cellIdx);
-                        String cellValue = getCellValueAsString(cell);
-                        possibleHeaders.add(cellValue);
-                        
-                        if (!cellValue.trim().isEmpty()) {
-                            nonEmptyCount++;
-                            // Check if this looks like a header (non-empty, not just numbers)
-                            if (!isNumeric(cellValue)) {
-                                hasValidHeaders = true;
-                            }
-                        }
-                    }
-                    
-                    // Look for rows with multiple columns and valid headers
-                    // For small files, be less strict about column count
-                    if (hasValidHeaders && nonEmptyCount >= 2 && !possibleHeaders.isEmpty()) {
-                        headers = possibleHeaders;
-                        headerRowIndex = rowIdx;
-                        System.out.println("Found headers in row " + rowIdx + ": " + headers);
-                        System.out.println("Non-empty columns: " + nonEmptyCount);
-                        break;
-                    }
+            // Phonetic guides are not part of a cell's value, so leave them out as XSSFCell does
+            SheetXmlHandler handler = new SheetXmlHandler(
+                    new ReadOnlySharedStringsTable(pkg, false), reader.getStylesTable(), isDate1904(reader), reader, consumer);
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(handler);
+            parser.parse(new InputSource(sheetStream));
+        } catch (StopReading e) {
+            // The consumer has everything it needs
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Invalid Excel file " + filePath + ": " + e.getMessage(), e);
+        } finally {
+            if (sheetStream != null) {
+                try {
+                    sheetStream.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing sheet stream for " + filePath + ": " + e.getMessage());
                 }
             }
-            
-            // If no headers found, check if first row has simple headers
-            if (headers.isEmpty() && sheet.getLastRowNum() >= 0) {
-                Row firstRow = sheet.getRow(0);
-                if (firstRow != null) {
-                    List<String> simpleHeaders = new ArrayList<>();
-                    boolean hasSimpleHeaders = true;
-                    
-                    for (int i = 0; i < firstRow.getLastCellNum(); i++) {
-                        Cell cell = firstRow.getCell(i);
-                        String cellValue = getCellValueAsString(cell);
-                        simpleHeaders.add(cellValue);
-                        
-                        // If any cell is empty or just numbers, it's probably not headers
-                        if (cellValue.trim().isEmpty() || isNumeric(cellValue)) {
-                            hasSimpleHeaders = false;
-                        }
+            if (pkg != null) {
+                // Read-only packages are discarded, not saved
+                pkg.revert();
+            }
+        }
+    }
+    
+    /**
+     * Whether the workbook uses the 1904 date system, read from workbookPr in workbook.xml
+     */
+    private static boolean isDate1904(XSSFReader reader) throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        boolean[] date1904 = {false};
+        InputStream workbookStream = reader.getWorkbookData();
+        try {
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+                    if ("workbookPr".equals(localName)) {
+                        String value = attributes.getValue("date1904");
+                        date1904[0] = "1".equals(value) || "true".equalsIgnoreCase(value);
+                        throw new StopReading();
                     }
-                    
-                    if (hasSimpleHeaders && !simpleHeaders.isEmpty()) {
-                        headers = simpleHeaders;
-                        headerRowIndex = 0;
-                        System.out.println("Found simple headers in row 0: " + headers);
-                    } else {
-                        // Create generic column names
-                        for (int i = 0; i < firstRow.getLastCellNum(); i++) {
-                            headers.add("Column_" + (i + 1));
-                        }
-                        headerRowIndex = -1; // Start reading from row 0
-                        System.out.println("No headers found, using generic names: " + headers);
+                }
+            });
+            parser.parse(new InputSource(workbookStream));
+        } catch (StopReading e) {
+            // workbookPr found
+        } finally {
+            workbookStream.close();
+        }
+        return date1904[0];
+    }
+    
+    /**
+     * A workbook holding only the sheet and defined names of workbook.xml: enough for POI to parse
+     * and render shared formulas without loading any sheet
+     */
+    private static XSSFEvaluationWorkbook createFormulaParsingWorkbook(XSSFReader reader) throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        XSSFWorkbook formulaBook = new XSSFWorkbook();
+        List<String[]> definedNames = new ArrayList<>();
+        InputStream workbookStream = reader.getWorkbookData();
+        try {
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new DefaultHandler() {
+                private final StringBuilder refersTo = new StringBuilder();
+                private String[] definedName;
+                
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    if ("sheet".equals(localName)) {
+                        formulaBook.createSheet(attributes.getValue("name"));
+                    } else if ("definedName".equals(localName)) {
+                        definedName = new String[] {attributes.getValue("name"), attributes.getValue("localSheetId"), null};
+                        refersTo.setLength(0);
                     }
                 }
-            }
-            
-            // Read data rows
-            int startRow = headerRowIndex + 1;
-            if (headerRowIndex == -1) startRow = 0; // If no header found, start from first row
-            
-            for (int i = startRow; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row != null) {
-                    // Use LinkedHashMap to preserve column order
-                    Map<String, Object> rowData = new LinkedHashMap<>();
-                    boolean hasData = false;
-                    
-                    for (int j = 0; j < headers.size() && j < row.getLastCellNum(); j++) {
-                        Cell cell = row.getCell(j);
-                        String header = headers.get(j);
-                        Object value = getCellValue(cell);
-                        
-                        if (value != null && !value.toString().trim().isEmpty()) {
-                            hasData = true;
-                        }
-                        
-                        rowData.put(header, value);
+                
+                @Override
+                public void characters(char[] ch, int start, int length) {
+                    if (definedName != null) {
+                        refersTo.append(ch, start, length);
                     }
-                    
-                    // Only add row if it has some data
-                    if (hasData) {
-                        data.add(rowData);
+                }
+                
+                @Override
+                public void endElement(String uri, String localName, String qName) {
+                    if ("definedName".equals(localName)) {
+                        definedName[2] = refersTo.toString();
+                        definedNames.add(definedName);
+                        definedName = null;
                     }
                 }
-            }
-            
-        } catch (Exception e) {
-            System.err.println("ERROR reading " + filePath + ": " + e.getMessage());
-            throw e; // Re-throw to be caught by main
+            });
+            parser.parse(new InputSource(workbookStream));
         } finally {
-            if (fis != null) {
-                try {
-                    fis.close();
-                } catch (IOException e) {
-                    System.err.println("Error closing file " + filePath + ": " + e.getMessage());
-                }
-            }
-            if (workbook != null) {
-                try {
-                    workbook.close();
-                } catch (Exception e) {
-                    System.err.println("Error closing workbook for " + filePath + ": " + e.getMessage());
+            workbookStream.close();
+        }
+        
+        for (String[] definedName : definedNames) {
+            XSSFName name = formulaBook.createName();
+            try {
+                name.setNameName(definedName[0]);
+                if (definedName[1] != null) {
+                    name.setSheetIndex(Integer.parseInt(definedName[1]));
                 }
+                name.setRefersToFormula(definedName[2]);
+            } catch (RuntimeException e) {
+                // A name POI cannot parse is left out; shared formulas using it keep their cached value
+                formulaBook.removeName(name);
             }
         }
-        
-        return data;
+        return XSSFEvaluationWorkbook.create(formulaBook);
     }
     
     /**
@@ -306,51 +405,36 @@ public class ExcelRightJoin {
     }
     
     /**
-     * Get the original column order from Excel file with enhanced error handling
+     * Get the original column order from Excel file with enhanced error handling.
+     * Only the first row is streamed, and the result is cached per file so the join and the
+     * writer do not each re-open the workbook.
      */
     public static List<String> getOriginalColumnOrder(String filePath) throws IOException {
+        List<String> cached = COLUMN_ORDER_CACHE.get(filePath);
+        if (cached != null) {
+            return new ArrayList<>(cached);
+        }
         List<String> columnOrder = new ArrayList<>();
         
-        FileInputStream fis = null;
-        Workbook workbook = null;
-        
         try {
-            fis = new FileInputStream(filePath);
-            workbook = new XSSFWorkbook(fis);
-            Sheet sheet = workbook.getSheetAt(0);
-            
-            if (sheet.getLastRowNum() >= 0) {
-                Row headerRow = sheet.getRow(0);
-                if (headerRow != null) {
-                    for (int i = 0; i < headerRow.getLastCellNum(); i++) {
-                        Cell cell = headerRow.getCell(i);
-                        String cellValue = getCellValueAsString(cell);
-                        if (!cellValue.trim().isEmpty()) {
-                            columnOrder.add(cellValue);
+            readFirstSheet(filePath, (rowIndex, cellCount, cellValue) -> {
+                if (rowIndex == 0) {
+                    for (int i = 0; i < cellCount; i++) {
+                        Object value = cellValue.apply(i);
+                        String cellText = value != null ? value.toString() : "";
+                        if (!cellText.trim().isEmpty()) {
+                            columnOrder.add(cellText);
                         }
                     }
                 }
-            }
+                throw new StopReading();
+            });
         } catch (Exception e) {
             System.err.println("ERROR reading column order from " + filePath + ": " + e.getMessage());
             throw e;
-        } finally {
-            if (workbook != null) {
-                try {
-                    workbook.close();
-                } catch (Exception e) {
-                    System.err.println("Error closing workbook: " + e.getMessage());
-                }
-            }
-            if (fis != null) {
-                try {
-                    fis.close();
-                } catch (IOException e) {
-                    System.err.println("Error closing file: " + e.getMessage());
-                }
-            }
         }
         
+        COLUMN_ORDER_CACHE.put(filePath, new ArrayList<>(columnOrder));
         return columnOrder;
     }
 
@@ -424,35 +508,29 @@ public class ExcelRightJoin {
     }
     
     /**
-     * Validate data integrity before performing join
+     * Validate data integrity before performing join, using the column profiles gathered during read
      */
-    private static boolean validateDataIntegrity(List<Map<String, Object>> mainData, List<Map<String, Object>> vendorData) {
+    private static boolean validateDataIntegrity(SheetReadResult mainRead, SheetReadResult vendorRead) {
         System.out.println("🔍 Validating data integrity...");
         
-        if (mainData.isEmpty()) {
+        if (mainRead.dataRows == 0) {
             System.err.println("❌ Main data is empty");
             return false;
         }
         
-        if (vendorData.isEmpty()) {
+        if (vendorRead.dataRows == 0) {
             System.err.println("❌ Vendor data is empty");
             return false;
         }
         
-        // Check if all main data records have the same column structure
-        Set<String> expectedColumns = mainData.get(0).keySet();
-        for (int i = 1; i < mainData.size(); i++) {
-            if (!mainData.get(i).keySet().equals(expectedColumns)) {
-                System.err.println("⚠️ Inconsistent column structure in main data at record " + (i + 1));
-            }
+        // Ragged rows were flagged while reading, so no per-row column comparison is needed here
+        if (mainRead.raggedRows > 0) {
+            System.err.println("⚠️ Inconsistent column structure in main data: " + mainRead.raggedRows
+                    + " ragged record(s), e.g. rows " + mainRead.raggedRowSamples);
         }
-        
-        // Check if all vendor data records have the same column structure
-        Set<String> vendorColumns = vendorData.get(0).keySet();
-        for (int i = 1; i < vendorData.size(); i++) {
-            if (!vendorData.get(i).keySet().equals(vendorColumns)) {
-                System.err.println("⚠️ Inconsistent column structure in vendor data at record " + (i + 1));
-            }
+        if (vendorRead.raggedRows > 0) {
+            System.err.println("⚠️ Inconsistent column structure in vendor data: " + vendorRead.raggedRows
+                    + " ragged record(s), e.g. rows " + vendorRead.raggedRowSamples);
         }
         
         System.out.println("✅ Data integrity validation completed");
@@ -466,120 +544,28 @@ public class ExcelRightJoin {
             List<Map<String, Object>> mainData, 
             List<Map<String, Object>> vendorData,
             String mainDataFilePath) {
-        
-        List<Map<String, Object>> result = new ArrayList<>();
-        
-        System.out.println("\n🔄 Starting  Inner Join Process...");
-        
-        // Validate data integrity first
-        if (!validateDataIntegrity(mainData, vendorData)) {
-            System.err.println("❌ Data integrity validation failed");
-            return result;
-        }
-        
-        // Get column information
-        Set<String> mainDataColumns = new HashSet<>(mainData.get(0).keySet());
-        Set<String> vendorDataColumns = new HashSet<>(vendorData.get(0).keySet());
-        
-        System.out.println("📋 Main Data columns (" + mainDataColumns.size() + "): " + mainDataColumns);
-        System.out.println("📋 Vendor Data columns (" + vendorDataColumns.size() + "): " + vendorDataColumns);
-        
-        // Find intersection and extra columns
-        Set<String> commonColumns = new HashSet<>(mainDataColumns);
-        commonColumns.retainAll(vendorDataColumns);
-        Set<String> extraVendorColumns = new HashSet<>(vendorDataColumns);
-        extraVendorColumns.removeAll(mainDataColumns);
-        
-        System.out.println("🔗 Common columns (" + commonColumns.size() + "): " + commonColumns);
-        System.out.println("➕ Extra vendor columns (" + extraVendorColumns.size() + "): " + extraVendorColumns);
-        
-        // Get the exact column order from main data Excel file
-        List<String> mainDataColumnOrder = new ArrayList<>();
-        try {
-            mainDataColumnOrder = getOriginalColumnOrder(mainDataFilePath);
-            System.out.println("📑 Original main data column order: " + mainDataColumnOrder);
-        } catch (IOException e) {
-            System.err.println("⚠️ Warning: Could not read original column order, using runtime order");
-            mainDataColumnOrder.addAll(mainData.get(0).keySet());
-        }
-        
-        // Intelligently detect best join key
-        String[] joinKeys = detectBestJoinKey(mainDataColumns, vendorDataColumns);
-        String mainJoinKey = joinKeys[0];
-        String vendorJoinKey = joinKeys[1];
-        
-        if (mainJoinKey == null || vendorJoinKey == null) {
-            System.err.println("❌ No suitable join key found between datasets!");
-            System.err.println("💡 Suggestion: Ensure both files have a common identifier column (like 'id', 'ID', etc.)");
-            return result;
-        }
-        
-        System.out.println("🔑 Using join keys: Main[" + mainJoinKey + "] ↔ Vendor[" + vendorJoinKey + "]");
-        
-        // Perform the inner join
-        int matchCount = 0;
-        int nullKeyCount = 0;
-        Set<Object> processedKeys = new HashSet<>();
-        
-        for (Map<String, Object> mainRecord : mainData) {
-            Object joinValue = mainRecord.get(mainJoinKey);
-            
-            if (joinValue == null || joinValue.toString().trim().isEmpty()) {
-                nullKeyCount++;
-                continue;
-            }
-            
-            // Look for matching records in vendor data
-            boolean matchFound = false;
-            for (Map<String, Object> vendorRecord : vendorData) {
-                Object vendorValue = vendorRecord.get(vendorJoinKey);
-                
-                if (vendorValue != null && isMatchingValue(joinValue, vendorValue)) {
-                    // Create joined record
-                    Map<String, Object> joinedRecord = new LinkedHashMap<>();
-                    
-                    // Add all main data columns in their exact original order
-                    for (String column : mainDataColumnOrder) {
-                        Object value = mainRecord.get(column);
-                        joinedRecord.put(column, value);
-                    }
-                    
-                    // Add any extra columns from vendor data that don't already exist
-                    for (String extraColumn : extraVendorColumns) {
-                        Object value = vendorRecord.get(extraColumn);
-                        joinedRecord.put(extraColumn, value);
-                    }
-                    
-                    result.add(joinedRecord);
-                    matchFound = true;
-                    matchCount++;
-                    processedKeys.add(joinValue);
-                    break; // Found match, move to next main record
-                }
-            }
-        }
-        
-        // Report join statistics
-        System.out.println("\n📊 Join Statistics:");
-        System.out.println("✅ Successful matches: " + matchCount);
-        System.out.println("📝 Total main records: " + mainData.size());
-        System.out.println("⚠️ Records with null join keys: " + nullKeyCount);
-        System.out.println("📈 Match rate: " + String.format("%.1f%%", (double) matchCount / mainData.size() * 100));
-        
-        if (matchCount == 0) {
-            System.err.println("❌ No matches found! Please check:");
-            System.err.println("   • Join key values in both files");
-            System.err.println("   • Data formatting (numbers vs text)");
-            System.err.println("   • Case sensitivity");
+        return performInnerJoin(SheetReadResult.fromRows(mainData), SheetReadResult.fromRows(vendorData), mainDataFilePath, null);
+    }
+    
+    /**
+     * Inner join over profiled reads, using already-resolved join keys (or detecting them when null)
+     */
+    public static List<Map<String, Object>> performInnerJoin(
+            SheetReadResult mainRead,
+            SheetReadResult vendorRead,
+            String mainDataFilePath,
+            String[] resolvedJoinKeys) {
+        InnerJoin innerJoin = new InnerJoin(vendorRead, mainDataFilePath, () -> resolvedJoinKeys);
+        for (Map<String, Object> mainRecord : mainRead.rows) {
+            innerJoin.accept(mainRecord);
         }
-        
-        return result;
+        return innerJoin.finish(mainRead);
     }
     
     /**
      * Check if two values match (handles different data types)
      */
-    private static boolean isMatchingValue(Object value1, Object value2) {
+    static boolean isMatchingValue(Object value1, Object value2) {
         if (value1 == null || value2 == null) {
             return false;
         }
@@ -601,7 +587,7 @@ public class ExcelRightJoin {
         try {
             double num1 = Double.parseDouble(str1);
             double num2 = Double.parseDouble(str2);
-            return Math.abs(num1 - num2) < 0.0001; // Handle floating point precision
+            return Math.abs(num1 - num2) < NUMERIC_MATCH_TOLERANCE; // Handle floating point precision
         } catch (NumberFormatException e) {
             // Not numeric, fall through
         }
@@ -660,9 +646,13 @@ public class ExcelRightJoin {
             }
         }
         
-        // Auto-size columns
-        for (int i = 0; i < allColumns.size(); i++) {
-            sheet.autoSizeColumn(i);
+        // Auto-size columns; fast-start estimates widths from text length so AWT font metrics are never loaded
+        if (FAST_START) {
+            estimateColumnWidths(sheet, allColumns, data);
+        } else {
+            for (int i = 0; i < allColumns.size(); i++) {
+                sheet.autoSizeColumn(i);
+            }
         }
         
         // Write to file
@@ -672,6 +662,23 @@ public class ExcelRightJoin {
         fos.close();
     }
     
+    /**
+     * Set column widths from the longest text in each column, without font measurement
+     */
+    private static void estimateColumnWidths(Sheet sheet, List<String> columns, List<Map<String, Object>> data) {
+        for (int i = 0; i < columns.size(); i++) {
+            int maxLength = columns.get(i).length();
+            for (Map<String, Object> record : data) {
+                Object value = record.get(columns.get(i));
+                if (value != null) {
+                    maxLength = Math.max(maxLength, value.toString().length());
+                }
+            }
+            // Width is in 1/256ths of a character; Excel caps it at 255 characters
+            sheet.setColumnWidth(i, Math.min(255, maxLength + 2) * 256);
+        }
+    }
+    
     /**
      * Get cell value as Object
      */
@@ -728,4 +735,1404 @@ public class ExcelRightJoin {
             }
         }
     }
+    
+    /**
+     * Canonical text form of a join key, equal for values isMatchingValue treats as equal text
+     */
+    private static String canonicalKeyText(Object value) {
+        String str = value.toString().trim();
+        StringBuilder canonical = new StringBuilder(str.length());
+        for (int i = 0; i < str.length(); i++) {
+            canonical.append(foldCase(str.charAt(i)));
+        }
+        return canonical.toString();
+    }
+    
+    /**
+     * Same per-character folding String.equalsIgnoreCase uses
+     */
+    private static char foldCase(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+    
+    /**
+     * Compare two values' canonical key texts without building them; same result as comparing canonicalKeyText
+     */
+    private static int compareCanonicalText(String a, String b) {
+        int aStart = 0, aEnd = a.length();
+        while (aStart < aEnd && a.charAt(aStart) <= ' ') aStart++;
+        while (aEnd > aStart && a.charAt(aEnd - 1) <= ' ') aEnd--;
+        int bStart = 0, bEnd = b.length();
+        while (bStart < bEnd && b.charAt(bStart) <= ' ') bStart++;
+        while (bEnd > bStart && b.charAt(bEnd - 1) <= ' ') bEnd--;
+        
+        int length = Math.min(aEnd - aStart, bEnd - bStart);
+        for (int i = 0; i < length; i++) {
+            char ca = foldCase(a.charAt(aStart + i));
+            char cb = foldCase(b.charAt(bStart + i));
+            if (ca != cb) {
+                return ca - cb;
+            }
+        }
+        return (aEnd - aStart) - (bEnd - bStart);
+    }
+    
+    /**
+     * Numeric value of a join key as isMatchingValue would parse it, or NaN if it is not a finite number.
+     * Text that cannot start a number is rejected without a parse (and exception).
+     */
+    private static double finiteNumericKey(Object value) {
+        if (value instanceof Double) {
+            double num = (Double) value;
+            return Double.isInfinite(num) ? Double.NaN : num;
+        }
+        String trimmed = value.toString().trim();
+        if (trimmed.isEmpty()) {
+            return Double.NaN;
+        }
+        char first = trimmed.charAt(0);
+        if (!(Character.isDigit(first) || first == '-' || first == '+' || first == '.')) {
+            return Double.NaN;
+        }
+        try {
+            double num = Double.parseDouble(trimmed);
+            return Double.isInfinite(num) ? Double.NaN : num;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+    
+    /**
+     * Tolerance bucket of a numeric join key, or null if the value is not a finite number.
+     * Values within NUMERIC_MATCH_TOLERANCE of each other land in the same or an adjacent bucket.
+     */
+    private static Long numericKeyBucket(Object value) {
+        double num = finiteNumericKey(value);
+        if (Double.isNaN(num)) {
+            return null;
+        }
+        double bucket = Math.floor(num / NUMERIC_MATCH_TOLERANCE);
+        if (Math.abs(bucket) >= (double) (Long.MAX_VALUE >> 2)) {
+            // Beyond this magnitude adjacent doubles are further apart than the tolerance, so match exactly
+            return Double.doubleToLongBits(num + 0.0);
+        }
+        return (long) bucket;
+    }
+    
+    /**
+     * Receives each streamed row; cellValue decodes the cell at a column index (null if absent)
+     */
+    private interface SheetRowConsumer {
+        void onRow(int rowIndex, int cellCount, IntFunction<Object> cellValue) throws SAXException;
+    }
+    
+    /**
+     * Thrown by a consumer to stop streaming once it has what it needs
+     */
+    private static final class StopReading extends SAXException {
+        private static final long serialVersionUID = 1L;
+    }
+    
+    /**
+     * Turns streamed rows into a SheetReadResult: finds the header row among the first rows,
+     * then pre-filters, profiles and materializes each data row
+     */
+    private static final class SheetRowCollector implements SheetRowConsumer {
+        private static final int HEADER_SCAN_ROWS = 11;
+        
+        private final SheetReadResult result;
+        private final VendorKeyFilter keyFilter;
+        private final Consumer<Map<String, Object>> rowSink;
+        private final List<Integer> bufferedRowIndexes = new ArrayList<>();
+        private final List<Object[]> bufferedRows = new ArrayList<>();
+        private boolean sawRows;
+        private boolean headersResolved;
+        private List<String> headers = new ArrayList<>();
+        private int[] mapColumns;
+        private Object[] rowValues;
+        private int keyColumnIndex = -1;
+        private int startRow;
+        
+        SheetRowCollector(SheetReadResult result, VendorKeyFilter keyFilter, Consumer<Map<String, Object>> rowSink) {
+            this.result = result;
+            this.keyFilter = keyFilter;
+            this.rowSink = rowSink;
+        }
+        
+        @Override
+        public void onRow(int rowIndex, int cellCount, IntFunction<Object> cellValue) {
+            sawRows = true;
+            if (!headersResolved) {
+                // Header candidates are the first rows; they are decoded and held until the header is known
+                if (rowIndex < HEADER_SCAN_ROWS) {
+                    Object[] values = new Object[cellCount];
+                    for (int j = 0; j < cellCount; j++) {
+                        values[j] = cellValue.apply(j);
+                    }
+                    bufferedRowIndexes.add(rowIndex);
+                    bufferedRows.add(values);
+                    return;
+                }
+                resolveHeaders();
+            }
+            if (rowIndex >= startRow) {
+                processRow(rowIndex, cellCount, cellValue);
+            }
+        }
+        
+        void finish() {
+            if (!headersResolved) {
+                resolveHeaders();
+            }
+        }
+        
+        private void resolveHeaders() {
+            headersResolved = true;
+            int headerRowIndex = -1;
+            
+            // Find header row (check more rows for real data table)
+            for (int b = 0; b < bufferedRows.size(); b++) {
+                Object[] row = bufferedRows.get(b);
+                List<String> possibleHeaders = new ArrayList<>();
+                boolean hasValidHeaders = false;
+                int nonEmptyCount = 0;
+                
+                for (Object value : row) {
+                    String cellValue = value != null ? value.toString() : "";
+                    possibleHeaders.add(cellValue);
+                    
+                    if (!cellValue.trim().isEmpty()) {
+                        nonEmptyCount++;
+                        // Check if this looks like a header (non-empty, not just numbers)
+                        if (!isNumeric(cellValue)) {
+                            hasValidHeaders = true;
+                        }
+                    }
+                }
+                
+                // Look for rows with multiple columns and valid headers
+                // For small files, be less strict about column count
+                if (hasValidHeaders && nonEmptyCount >= 2 && !possibleHeaders.isEmpty()) {
+                    headers = possibleHeaders;
+                    headerRowIndex = bufferedRowIndexes.get(b);
+                    System.out.println("Found headers in row " + headerRowIndex + ": " + headers);
+                    System.out.println("Non-empty columns: " + nonEmptyCount);
+                    break;
+                }
+            }
+            
+            // If no headers found, check if first row has simple headers
+            int firstRowBuffer = bufferedRowIndexes.indexOf(0);
+            if (headers.isEmpty() && firstRowBuffer >= 0) {
+                Object[] firstRow = bufferedRows.get(firstRowBuffer);
+                List<String> simpleHeaders = new ArrayList<>();
+                boolean hasSimpleHeaders = true;
+                
+                for (Object value : firstRow) {
+                    String cellValue = value != null ? value.toString() : "";
+                    simpleHeaders.add(cellValue);
+                    
+                    // If any cell is empty or just numbers, it's probably not headers
+                    if (cellValue.trim().isEmpty() || isNumeric(cellValue)) {
+                        hasSimpleHeaders = false;
+                    }
+                }
+                
+                if (hasSimpleHeaders && !simpleHeaders.isEmpty()) {
+                    headers = simpleHeaders;
+                    headerRowIndex = 0;
+                    System.out.println("Found simple headers in row 0: " + headers);
+                } else {
+                    // Create generic column names
+                    for (int i = 0; i < firstRow.length; i++) {
+                        headers.add("Column_" + (i + 1));
+                    }
+                    headerRowIndex = -1; // Start reading from row 0
+                    System.out.println("No headers found, using generic names: " + headers);
+                }
+            }
+            
+            result.headers.addAll(headers);
+            for (String header : headers) {
+                result.columnProfiles.add(new ColumnProfile(header));
+            }
+            rowValues = new Object[headers.size()];
+            
+            // A duplicated header is owned by its last column: the row map, the profile lookup and the
+            // pre-filter all read that one column, even in rows that end before it. The map keeps the
+            // header at its first position, as putting every column in order did.
+            List<Integer> owners = new ArrayList<>();
+            for (int j = 0; j < headers.size(); j++) {
+                if (headers.indexOf(headers.get(j)) == j) {
+                    owners.add(headers.lastIndexOf(headers.get(j)));
+                }
+            }
+            mapColumns = owners.stream().mapToInt(Integer::intValue).toArray();
+            
+            // Resolve the join key column so rows can be pre-filtered on it
+            if (keyFilter != null) {
+                String keyColumn = keyFilter.bindMainColumns(headers);
+                keyColumnIndex = keyColumn != null ? headers.lastIndexOf(keyColumn) : -1;
+            }
+            
+            // Read data rows
+            startRow = headerRowIndex + 1;
+            if (headerRowIndex == -1) startRow = 0; // If no header found, start from first row
+            
+            for (int b = 0; b < bufferedRows.size(); b++) {
+                if (bufferedRowIndexes.get(b) >= startRow) {
+                    Object[] row = bufferedRows.get(b);
+                    processRow(bufferedRowIndexes.get(b), row.length, j -> j < row.length ? row[j] : null);
+                }
+            }
+            bufferedRows.clear();
+            bufferedRowIndexes.clear();
+        }
+        
+        private void processRow(int rowIndex, int cellCount, IntFunction<Object> cellValue) {
+            int readCount = Math.min(headers.size(), cellCount);
+            
+            // Decode only the key cell first; rows with a key the vendor data cannot match are skipped,
+            // but still checked for raggedness and counted in the key column's profile
+            Object keyValue = null;
+            if (keyColumnIndex >= 0) {
+                keyValue = keyColumnIndex < readCount ? cellValue.apply(keyColumnIndex) : null;
+                if (keyValue != null && !keyValue.toString().trim().isEmpty() && !keyFilter.mightMatch(keyValue)) {
+                    if (cellCount != headers.size()) {
+                        result.recordRaggedRow(rowIndex + 1);
+                    }
+                    result.columnProfiles.get(keyColumnIndex).record(keyValue);
+                    result.prefilteredRows++;
+                    return;
+                }
+            }
+            
+            boolean hasData = false;
+            for (int j = 0; j < readCount; j++) {
+                Object value = j == keyColumnIndex ? keyValue : cellValue.apply(j);
+                if (value != null && !value.toString().trim().isEmpty()) {
+                    hasData = true;
+                }
+                rowValues[j] = value;
+            }
+            
+            // Only add row if it has some data
+            if (hasData) {
+                // Use LinkedHashMap to preserve column order
+                Map<String, Object> rowData = new LinkedHashMap<>();
+                for (int j : mapColumns) {
+                    if (j < readCount) {
+                        rowData.put(headers.get(j), rowValues[j]);
+                    }
+                }
+                result.dataRows++;
+                if (result.sampleRow == null) {
+                    result.sampleRow = rowData;
+                }
+                rowSink.accept(rowData);
+                
+                // Profile the row incrementally; cells past the row's end count as nulls
+                for (int j = 0; j < headers.size(); j++) {
+                    result.columnProfiles.get(j).record(j < readCount ? rowValues[j] : null);
+                }
+                if (cellCount != headers.size()) {
+                    result.recordRaggedRow(rowIndex + 1);
+                }
+            }
+        }
+    }
+    
+    /**
+     * SAX handler for sheet XML. A row's cell texts are kept as offsets into one buffer, and a
+     * cell is only decoded into the value getCellValue would return when the consumer asks for it.
+     */
+    private static final class SheetXmlHandler extends DefaultHandler implements IntFunction<Object> {
+        private static final byte TYPE_NUMBER = 0;
+        private static final byte TYPE_SHARED_STRING = 1;
+        private static final byte TYPE_INLINE_STRING = 2;
+        private static final byte TYPE_TEXT = 3;
+        private static final byte TYPE_BOOLEAN = 4;
+        private static final byte TYPE_ERROR = 5;
+        
+        private final SharedStrings sharedStrings;
+        private final StylesTable styles;
+        private final boolean date1904;
+        private final XSSFReader workbookReader;
+        private final SheetRowConsumer consumer;
+        private final Map<Integer, Boolean> dateStyles = new HashMap<>();
+        private final Map<Integer, FormulaRange> sharedFormulas = new HashMap<>();
+        private final List<FormulaRange> arrayFormulas = new ArrayList<>();
+        private final SharedFormula sharedFormulaShifter = new SharedFormula(SpreadsheetVersion.EXCEL2007);
+        private XSSFEvaluationWorkbook formulaBook;
+        
+        private final StringBuilder rowText = new StringBuilder();
+        private int[] cellColumns = new int[16];
+        private byte[] cellTypes = new byte[16];
+        private int[] cellStyles = new int[16];
+        private int[] valueStarts = new int[16];
+        private int[] valueEnds = new int[16];
+        private int[] formulaStarts = new int[16];
+        private int[] formulaEnds = new int[16];
+        private int[] sharedIndexes = new int[16];
+        private int[] cellByColumn = new int[16];
+        private int cellCount;
+        private int lastCellNum;
+        private int rowIndex;
+        private int nextRowIndex;
+        private int nextColumn;
+        private int captureStart;
+        private boolean capturing;
+        private boolean inInlineString;
+        private boolean inPhonetic;
+        private String formulaType;
+        private String formulaRef;
+        
+        SheetXmlHandler(SharedStrings sharedStrings, StylesTable styles, boolean date1904, XSSFReader workbookReader, SheetRowConsumer consumer) {
+            this.sharedStrings = sharedStrings;
+            this.styles = styles;
+            this.date1904 = date1904;
+            this.workbookReader = workbookReader;
+            this.consumer = consumer;
+        }
+        
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row":
+                    String rowRef = attributes.getValue("r");
+                    rowIndex = rowRef != null ? Integer.parseInt(rowRef) - 1 : nextRowIndex;
+                    rowText.setLength(0);
+                    cellCount = 0;
+                    lastCellNum = 0;
+                    nextColumn = 0;
+                    break;
+                case "c":
+                    ensureCellCapacity();
+                    String cellRef = attributes.getValue("r");
+                    int column = cellRef != null ? columnIndex(cellRef) : nextColumn;
+                    nextColumn = column + 1;
+                    lastCellNum = Math.max(lastCellNum, column + 1);
+                    String style = attributes.getValue("s");
+                    cellColumns[cellCount] = column;
+                    cellTypes[cellCount] = cellType(attributes.getValue("t"));
+                    cellStyles[cellCount] = style != null ? Integer.parseInt(style) : 0;
+                    valueStarts[cellCount] = -1;
+                    formulaStarts[cellCount] = -1;
+                    sharedIndexes[cellCount] = -1;
+                    break;
+                case "v":
+                    captureStart = rowText.length();
+                    capturing = true;
+                    break;
+                case "f":
+                    formulaType = attributes.getValue("t");
+                    formulaRef = attributes.getValue("ref");
+                    String sharedIndex = attributes.getValue("si");
+                    if ("shared".equals(formulaType) && sharedIndex != null) {
+                        sharedIndexes[cellCount] = Integer.parseInt(sharedIndex);
+                    }
+                    captureStart = rowText.length();
+                    capturing = true;
+                    break;
+                case "is":
+                    inInlineString = true;
+                    valueStarts[cellCount] = rowText.length();
+                    break;
+                case "rPh":
+                    inPhonetic = true;
+                    break;
+                case "t":
+                    // Inline rich text runs are concatenated; phonetic guides are not part of the value
+                    capturing = inInlineString && !inPhonetic;
+                    break;
+                default:
+                    break;
+            }
+        }
+        
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (capturing) {
+                rowText.append(ch, start, length);
+            }
+        }
+        
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "v":
+                    valueStarts[cellCount] = captureStart;
+                    valueEnds[cellCount] = rowText.length();
+                    capturing = false;
+                    break;
+                case "f":
+                    capturing = false;
+                    if ("dataTable".equals(formulaType)) {
+                        break; // POI types data table cells by their cached value
+                    }
+                    formulaStarts[cellCount] = captureStart;
+                    formulaEnds[cellCount] = rowText.length();
+                    if (formulaRef != null) {
+                        recordFormulaRange();
+                    }
+                    break;
+                case "t":
+                    capturing = false;
+                    break;
+                case "rPh":
+                    inPhonetic = false;
+                    break;
+                case "is":
+                    valueEnds[cellCount] = rowText.length();
+                    inInlineString = false;
+                    break;
+                case "c":
+                    cellCount++;
+                    break;
+                case "row":
+                    if (cellByColumn.length < lastCellNum) {
+                        cellByColumn = new int[Math.max(lastCellNum, cellByColumn.length * 2)];
+                    }
+                    Arrays.fill(cellByColumn, 0, lastCellNum, -1);
+                    for (int i = 0; i < cellCount; i++) {
+                        cellByColumn[cellColumns[i]] = i;
+                    }
+                    consumer.onRow(rowIndex, lastCellNum, this);
+                    nextRowIndex = rowIndex + 1;
+                    break;
+                default:
+                    break;
+            }
+        }
+        
+        /**
+         * Remember the master of a shared formula or an array formula so that the other cells
+         * of its range can be given their formula text
+         */
+        private void recordFormulaRange() throws SAXException {
+            String formula = rowText.substring(formulaStarts[cellCount], formulaEnds[cellCount]);
+            CellRangeAddress range = CellRangeAddress.valueOf(formulaRef);
+            if (sharedIndexes[cellCount] >= 0) {
+                // As XSSFSheet does, a range starting before its master cell is trimmed to start at the master
+                int column = cellColumns[cellCount];
+                range = new CellRangeAddress(
+                        Math.max(rowIndex, range.getFirstRow()), Math.max(rowIndex, range.getLastRow()),
+                        Math.max(column, range.getFirstColumn()), Math.max(column, range.getLastColumn()));
+                sharedFormulas.put(sharedIndexes[cellCount], new FormulaRange(range, formula));
+                if (formulaBook == null) {
+                    try {
+                        formulaBook = createFormulaParsingWorkbook(workbookReader);
+                    } catch (IOException | OpenXML4JException | ParserConfigurationException e) {
+                        throw new SAXException("Could not read workbook names for shared formulas", e);
+                    }
+                }
+            } else if ("array".equals(formulaType)) {
+                arrayFormulas.add(new FormulaRange(range, formula));
+            }
+        }
+        
+        /**
+         * Formula text of a cell as XSSFCell.getCellFormula gives it, or null to use the cached value
+         */
+        private String formulaText(int cell, int column) {
+            boolean hasFormulaText = formulaStarts[cell] >= 0 && formulaEnds[cell] > formulaStarts[cell];
+            if (!hasFormulaText) {
+                // Cells of an array formula other than its master show the master's formula
+                for (FormulaRange arrayFormula : arrayFormulas) {
+                    if (arrayFormula.range.isInRange(rowIndex, column)) {
+                        return arrayFormula.formula;
+                    }
+                }
+            }
+            if (formulaStarts[cell] < 0) {
+                return null;
+            }
+            if (sharedIndexes[cell] >= 0) {
+                return sharedFormulaText(sharedIndexes[cell], column);
+            }
+            return rowText.substring(formulaStarts[cell], formulaEnds[cell]);
+        }
+        
+        /**
+         * Rebuild a shared formula for one cell of its range by shifting the master's relative
+         * references, as XSSFCell does through POI's SharedFormula
+         */
+        private String sharedFormulaText(int sharedIndex, int column) {
+            FormulaRange master = sharedFormulas.get(sharedIndex);
+            if (master == null || master.unparsable) {
+                return null;
+            }
+            try {
+                if (master.ptgs == null) {
+                    master.ptgs = FormulaParser.parse(master.formula, formulaBook, FormulaType.CELL, 0, rowIndex);
+                }
+                Ptg[] shifted = sharedFormulaShifter.convertSharedFormulas(master.ptgs,
+                        rowIndex - master.range.getFirstRow(), column - master.range.getFirstColumn());
+                return FormulaRenderer.toFormulaString(formulaBook, shifted);
+            } catch (RuntimeException e) {
+                // Formulas that need more of the workbook than its names (e.g. table references) keep their cached value
+                master.unparsable = true;
+                return null;
+            }
+        }
+        
+        /**
+         * Decode the cell at a column of the current row
+         */
+        @Override
+        public Object apply(int column) {
+            int cell = column < lastCellNum ? cellByColumn[column] : -1;
+            if (cell < 0) {
+                return null;
+            }
+            
+            // Formula cells yield their formula text, as Cell.getCellFormula does
+            if (formulaStarts[cell] >= 0 || !arrayFormulas.isEmpty()) {
+                String formula = formulaText(cell, column);
+                if (formula != null) {
+                    return formula;
+                }
+            }
+            String raw = valueStarts[cell] >= 0 ? rowText.substring(valueStarts[cell], valueEnds[cell]) : null;
+            
+            switch (cellTypes[cell]) {
+                case TYPE_SHARED_STRING:
+                    return raw == null || raw.trim().isEmpty() ? "" : sharedStrings.getItemAt(Integer.parseInt(raw.trim())).getString();
+                case TYPE_INLINE_STRING:
+                case TYPE_TEXT:
+                    // Unescape _xHHHH_ sequences the way shared strings already are
+                    return raw == null ? "" : raw.contains("_x") ? new XSSFRichTextString(raw).getString() : raw;
+                case TYPE_BOOLEAN:
+                    return "1".equals(raw);
+                case TYPE_ERROR:
+                    return null;
+                default:
+                    if (raw == null || raw.trim().isEmpty()) {
+                        return null; // Blank cell
+                    }
+                    double value = Double.parseDouble(raw.trim());
+                    if (DateUtil.isValidExcelDate(value) && isDateStyle(cellStyles[cell])) {
+                        return DateUtil.getJavaDate(value, date1904);
+                    }
+                    return value;
+            }
+        }
+        
+        private boolean isDateStyle(int styleIndex) {
+            Boolean cached = dateStyles.get(styleIndex);
+            if (cached == null) {
+                CellStyle style = styles != null && styles.getNumCellStyles() > 0 ? styles.getStyleAt(styleIndex) : null;
+                ExcelNumberFormat format = style != null ? ExcelNumberFormat.from(style) : null;
+                cached = format != null && DateUtil.isADateFormat(format);
+                dateStyles.put(styleIndex, cached);
+            }
+            return cached;
+        }
+        
+        private void ensureCellCapacity() {
+            if (cellCount < cellColumns.length) {
+                return;
+            }
+            int capacity = cellColumns.length * 2;
+            cellColumns = Arrays.copyOf(cellColumns, capacity);
+            cellTypes = Arrays.copyOf(cellTypes, capacity);
+            cellStyles = Arrays.copyOf(cellStyles, capacity);
+            valueStarts = Arrays.copyOf(valueStarts, capacity);
+            valueEnds = Arrays.copyOf(valueEnds, capacity);
+            formulaStarts = Arrays.copyOf(formulaStarts, capacity);
+            formulaEnds = Arrays.copyOf(formulaEnds, capacity);
+            sharedIndexes = Arrays.copyOf(sharedIndexes, capacity);
+        }
+        
+        private static byte cellType(String type) {
+            if (type == null || "n".equals(type)) {
+                return TYPE_NUMBER;
+            }
+            switch (type) {
+                case "s":
+                    return TYPE_SHARED_STRING;
+                case "inlineStr":
+                    return TYPE_INLINE_STRING;
+                case "b":
+                    return TYPE_BOOLEAN;
+                case "e":
+                    return TYPE_ERROR;
+                default:
+                    return TYPE_TEXT;
+            }
+        }
+        
+        /**
+         * Zero-based column of an A1-style cell reference
+         */
+        private static int columnIndex(String cellRef) {
+            int column = 0;
+            for (int i = 0; i < cellRef.length(); i++) {
+                char c = cellRef.charAt(i);
+                if (c < 'A' || c > 'Z') {
+                    break;
+                }
+                column = column * 26 + (c - 'A' + 1);
+            }
+            return column - 1;
+        }
+    }
+    
+    /**
+     * Cell range of a shared or array formula and its master's formula text
+     */
+    private static final class FormulaRange {
+        final CellRangeAddress range;
+        final String formula;
+        Ptg[] ptgs;
+        boolean unparsable;
+        
+        FormulaRange(CellRangeAddress range, String formula) {
+            this.range = range;
+            this.formula = formula;
+        }
+    }
+    
+    /**
+     * Rows read from a sheet, their column profiles, and the number of rows the vendor key filter skipped
+     */
+    public static final class SheetReadResult {
+        private static final int MAX_RAGGED_ROW_SAMPLES = 5;
+        
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        final List<String> headers = new ArrayList<>();
+        final List<ColumnProfile> columnProfiles = new ArrayList<>();
+        final List<Integer> raggedRowSamples = new ArrayList<>();
+        // Kept rows are counted even when a row sink consumed them instead of rows
+        int dataRows;
+        Map<String, Object> sampleRow;
+        int raggedRows;
+        int prefilteredRows;
+        
+        void recordRaggedRow(int rowNumber) {
+            raggedRows++;
+            if (raggedRowSamples.size() < MAX_RAGGED_ROW_SAMPLES) {
+                raggedRowSamples.add(rowNumber);
+            }
+        }
+        
+        /**
+         * Profile of the column that owns this header (the last one when headers repeat)
+         */
+        ColumnProfile getProfile(String column) {
+            int index = headers.lastIndexOf(column);
+            return index >= 0 ? columnProfiles.get(index) : null;
+        }
+        
+        /**
+         * Profile rows that were materialized without going through the reader, taking the first row's columns as headers
+         */
+        static SheetReadResult fromRows(List<Map<String, Object>> rows) {
+            SheetReadResult result = new SheetReadResult();
+            result.rows.addAll(rows);
+            result.dataRows = rows.size();
+            if (rows.isEmpty()) {
+                return result;
+            }
+            result.sampleRow = rows.get(0);
+            result.headers.addAll(rows.get(0).keySet());
+            for (String header : result.headers) {
+                result.columnProfiles.add(new ColumnProfile(header));
+            }
+            for (int i = 0; i < rows.size(); i++) {
+                Map<String, Object> row = rows.get(i);
+                for (int j = 0; j < result.headers.size(); j++) {
+                    result.columnProfiles.get(j).record(row.get(result.headers.get(j)));
+                }
+                if (!row.keySet().equals(rows.get(0).keySet())) {
+                    result.recordRaggedRow(i + 1);
+                }
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * How join keys are encoded for the vendor key filter, chosen from the vendor key column profile
+     */
+    enum KeyEncoding {
+        /** Every key is a finite number, so only the numeric tolerance bucket can match */
+        NUMERIC,
+        /** No key is a finite number, so only the case-folded text can match */
+        TEXT,
+        /** Keys of both kinds, so both encodings are checked */
+        MIXED
+    }
+    
+    /**
+     * Incremental per-column statistics: nulls, value type mix, min/max, an approximate distinct count,
+     * and whether values arrive in non-decreasing numeric and canonical text order
+     */
+    static final class ColumnProfile {
+        private final String column;
+        private final HyperLogLog distinct = new HyperLogLog();
+        private int recordCount;
+        private int nullCount;
+        private int numericCount;
+        private int numericTextCount;
+        private int textCount;
+        private int dateCount;
+        private int booleanCount;
+        private double numericMin = Double.POSITIVE_INFINITY;
+        private double numericMax = Double.NEGATIVE_INFINITY;
+        private String textMin;
+        private String textMax;
+        private Date dateMin;
+        private Date dateMax;
+        private boolean numericOrdered = true;
+        private boolean textOrdered = true;
+        private double lastNumeric = Double.NEGATIVE_INFINITY;
+        private String lastText;
+        
+        ColumnProfile(String column) {
+            this.column = column;
+        }
+        
+        void record(Object value) {
+            recordCount++;
+            if (value == null || value.toString().trim().isEmpty()) {
+                nullCount++;
+                return;
+            }
+            String valueText = value.toString();
+            distinct.add(valueText);
+            
+            // Sortedness in the two orders the join can merge on
+            if (textOrdered && lastText != null && compareCanonicalText(valueText, lastText) < 0) {
+                textOrdered = false;
+            }
+            lastText = valueText;
+            double numericKey = finiteNumericKey(value);
+            if (!Double.isNaN(numericKey)) {
+                if (numericKey < lastNumeric) {
+                    numericOrdered = false;
+                }
+                lastNumeric = numericKey;
+            }
+            
+            if (value instanceof Number) {
+                numericCount++;
+                double num = ((Number) value).doubleValue();
+                numericMin = Math.min(numericMin, num);
+                numericMax = Math.max(numericMax, num);
+            } else if (value instanceof Date) {
+                dateCount++;
+                Date date = (Date) value;
+                if (dateMin == null || date.before(dateMin)) dateMin = date;
+                if (dateMax == null || date.after(dateMax)) dateMax = date;
+            } else if (value instanceof Boolean) {
+                booleanCount++;
+            } else {
+                String text = valueText;
+                if (!Double.isNaN(numericKey)) {
+                    numericTextCount++;
+                } else {
+                    textCount++;
+                }
+                if (textMin == null || text.compareTo(textMin) < 0) textMin = text;
+                if (textMax == null || text.compareTo(textMax) > 0) textMax = text;
+            }
+        }
+        
+        /**
+         * Key encoding that loses no match for a join key column with this profile
+         */
+        KeyEncoding keyEncoding() {
+            int finiteNumeric = numericCount + numericTextCount;
+            int nonNull = finiteNumeric + textCount + dateCount + booleanCount;
+            if (nonNull > 0 && finiteNumeric == nonNull) {
+                return KeyEncoding.NUMERIC;
+            }
+            return finiteNumeric == 0 ? KeyEncoding.TEXT : KeyEncoding.MIXED;
+        }
+        
+        /**
+         * Whether the non-null values arrived in non-decreasing order under the given key encoding
+         */
+        boolean isOrderedFor(KeyEncoding encoding) {
+            switch (encoding) {
+                case NUMERIC:
+                    return numericOrdered;
+                case TEXT:
+                    return textOrdered;
+                default:
+                    return false;
+            }
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(column.isEmpty() ? "(blank header)" : column);
+            sb.append(": records=").append(recordCount);
+            sb.append(", nulls=").append(nullCount);
+            sb.append(", types={");
+            List<String> types = new ArrayList<>();
+            if (numericCount > 0) types.add("numeric=" + numericCount);
+            if (numericTextCount > 0) types.add("numericText=" + numericTextCount);
+            if (textCount > 0) types.add("text=" + textCount);
+            if (dateCount > 0) types.add("date=" + dateCount);
+            if (booleanCount > 0) types.add("boolean=" + booleanCount);
+            sb.append(String.join(", ", types)).append("}");
+            if (numericCount > 0) sb.append(", numericRange=[").append(numericMin).append(" .. ").append(numericMax).append("]");
+            if (textMin != null) sb.append(", textRange=[").append(abbreviate(textMin)).append(" .. ").append(abbreviate(textMax)).append("]");
+            if (dateMin != null) sb.append(", dateRange=[").append(dateMin).append(" .. ").append(dateMax).append("]");
+            sb.append(", ~distinct=").append(distinct.estimate());
+            sb.append(", keyEncoding=").append(keyEncoding());
+            if (keyEncoding() != KeyEncoding.MIXED) {
+                sb.append(", sorted=").append(isOrderedFor(keyEncoding()));
+            }
+            return sb.toString();
+        }
+        
+        private static String abbreviate(String value) {
+            return value.length() > 30 ? value.substring(0, 30) + "..." : value;
+        }
+    }
+    
+    /**
+     * Inner join fed one main record at a time, so the main file can be joined while it streams in
+     * and only joined records are kept. Columns, join keys and strategy are settled on the first
+     * main record; finish() validates the reads and reports the join statistics.
+     */
+    static final class InnerJoin implements Consumer<Map<String, Object>> {
+        private final SheetReadResult vendorRead;
+        private final List<Map<String, Object>> vendorData;
+        private final String mainDataFilePath;
+        private final Supplier<String[]> resolvedJoinKeys;
+        private final List<Map<String, Object>> result = new ArrayList<>();
+        private boolean started;
+        private String mainJoinKey;
+        private String vendorJoinKey;
+        private List<String> mainDataColumnOrder;
+        private Set<String> extraVendorColumns;
+        private SortedVendorKeys sortedVendorKeys;
+        private int matchCount;
+        private int nullKeyCount;
+        
+        InnerJoin(SheetReadResult vendorRead, String mainDataFilePath, Supplier<String[]> resolvedJoinKeys) {
+            this.vendorRead = vendorRead;
+            this.vendorData = vendorRead.rows;
+            this.mainDataFilePath = mainDataFilePath;
+            this.resolvedJoinKeys = resolvedJoinKeys;
+            System.out.println("\n🔄 Starting  Inner Join Process...");
+        }
+        
+        @Override
+        public void accept(Map<String, Object> mainRecord) {
+            if (!started) {
+                started = true;
+                start(mainRecord.keySet());
+            }
+            if (mainJoinKey == null) {
+                return;
+            }
+            
+            Object joinValue = mainRecord.get(mainJoinKey);
+            
+            if (joinValue == null || joinValue.toString().trim().isEmpty()) {
+                nullKeyCount++;
+                return;
+            }
+            
+            // Look for the first matching record in vendor data
+            Map<String, Object> vendorRecord = null;
+            if (sortedVendorKeys != null) {
+                int vendorPosition = sortedVendorKeys.findFirstMatch(joinValue);
+                vendorRecord = vendorPosition >= 0 ? vendorData.get(vendorPosition) : null;
+            } else {
+                for (Map<String, Object> candidate : vendorData) {
+                    Object vendorValue = candidate.get(vendorJoinKey);
+                    if (vendorValue != null && isMatchingValue(joinValue, vendorValue)) {
+                        vendorRecord = candidate;
+                        break; // Found match, move to next main record
+                    }
+                }
+            }
+            
+            if (vendorRecord != null) {
+                // Create joined record
+                Map<String, Object> joinedRecord = new LinkedHashMap<>();
+                
+                // Add all main data columns in their exact original order
+                for (String column : mainDataColumnOrder) {
+                    Object value = mainRecord.get(column);
+                    joinedRecord.put(column, value);
+                }
+                
+                // Add any extra columns from vendor data that don't already exist
+                for (String extraColumn : extraVendorColumns) {
+                    Object value = vendorRecord.get(extraColumn);
+                    joinedRecord.put(extraColumn, value);
+                }
+                
+                result.add(joinedRecord);
+                matchCount++;
+            }
+        }
+        
+        /**
+         * Resolve column layout, join keys and strategy from the first main record's columns
+         */
+        private void start(Set<String> mainColumns) {
+            if (vendorData.isEmpty()) {
+                return; // Reported by the integrity validation in finish()
+            }
+            
+            // Get column information
+            Set<String> mainDataColumns = new HashSet<>(mainColumns);
+            Set<String> vendorDataColumns = new HashSet<>(vendorData.get(0).keySet());
+            
+            System.out.println("📋 Main Data columns (" + mainDataColumns.size() + "): " + mainDataColumns);
+            System.out.println("📋 Vendor Data columns (" + vendorDataColumns.size() + "): " + vendorDataColumns);
+            
+            // Find intersection and extra columns
+            Set<String> commonColumns = new HashSet<>(mainDataColumns);
+            commonColumns.retainAll(vendorDataColumns);
+            extraVendorColumns = new HashSet<>(vendorDataColumns);
+            extraVendorColumns.removeAll(mainDataColumns);
+            
+            System.out.println("🔗 Common columns (" + commonColumns.size() + "): " + commonColumns);
+            System.out.println("➕ Extra vendor columns (" + extraVendorColumns.size() + "): " + extraVendorColumns);
+            
+            // Get the exact column order from main data Excel file
+            mainDataColumnOrder = new ArrayList<>();
+            try {
+                mainDataColumnOrder = getOriginalColumnOrder(mainDataFilePath);
+                System.out.println("📑 Original main data column order: " + mainDataColumnOrder);
+            } catch (IOException e) {
+                System.err.println("⚠️ Warning: Could not read original column order, using runtime order");
+                mainDataColumnOrder.addAll(mainColumns);
+            }
+            
+            // Intelligently detect best join key, unless the read already resolved it
+            String[] joinKeys = resolvedJoinKeys.get();
+            if (joinKeys == null) {
+                joinKeys = detectBestJoinKey(mainDataColumns, vendorDataColumns);
+            }
+            
+            if (joinKeys[0] == null || joinKeys[1] == null) {
+                System.err.println("❌ No suitable join key found between datasets!");
+                System.err.println("💡 Suggestion: Ensure both files have a common identifier column (like 'id', 'ID', etc.)");
+                return;
+            }
+            mainJoinKey = joinKeys[0];
+            vendorJoinKey = joinKeys[1];
+            
+            System.out.println("🔑 Using join keys: Main[" + mainJoinKey + "] ↔ Vendor[" + vendorJoinKey + "]");
+            
+            // Choose the join strategy from the vendor key profile; main key order is followed as records arrive
+            ColumnProfile vendorKeyProfile = vendorRead.getProfile(vendorJoinKey);
+            KeyEncoding keyEncoding = vendorKeyProfile != null ? vendorKeyProfile.keyEncoding() : KeyEncoding.MIXED;
+            if (keyEncoding != KeyEncoding.MIXED) {
+                boolean vendorKeySorted = vendorKeyProfile.isOrderedFor(keyEncoding);
+                sortedVendorKeys = new SortedVendorKeys(vendorData, vendorJoinKey, keyEncoding, vendorKeySorted);
+                System.out.println("⚙️ Join strategy: sort-merge over " + (vendorKeySorted ? "" : "sorted ")
+                        + "vendor keys while main keys arrive in " + keyEncoding + " order, then binary search");
+            } else {
+                System.out.println("⚙️ Join strategy: nested loop (join keys mix numbers and text)");
+            }
+        }
+        
+        /**
+         * Validate the reads and report join statistics once every main record has been seen
+         */
+        List<Map<String, Object>> finish(SheetReadResult mainRead) {
+            // Validate data integrity; ragged rows are only known once the main file has been read
+            if (!validateDataIntegrity(mainRead, vendorRead)) {
+                System.err.println("❌ Data integrity validation failed");
+                return new ArrayList<>();
+            }
+            if (mainJoinKey == null) {
+                return result;
+            }
+            
+            if (sortedVendorKeys != null) {
+                int outOfOrderLookup = sortedVendorKeys.getFirstOutOfOrderLookup();
+                if (outOfOrderLookup < 0) {
+                    System.out.println("⚙️ Main join keys arrived sorted: joined in a single merge pass");
+                } else {
+                    System.out.println("⚙️ Main join key #" + outOfOrderLookup + " arrived out of order: binary search from there on");
+                }
+            }
+            
+            // Report join statistics
+            int prefilteredMainRecords = mainRead.prefilteredRows;
+            int totalMainRecords = mainRead.dataRows + prefilteredMainRecords;
+            System.out.println("\n📊 Join Statistics:");
+            System.out.println("✅ Successful matches: " + matchCount);
+            System.out.println("📝 Total main records: " + totalMainRecords);
+            System.out.println("🧹 Skipped by vendor key pre-filter: " + prefilteredMainRecords);
+            System.out.println("⚠️ Records with null join keys: " + nullKeyCount);
+            System.out.println("📈 Match rate: " + String.format("%.1f%%", (double) matchCount / totalMainRecords * 100));
+            
+            if (matchCount == 0) {
+                System.err.println("❌ No matches found! Please check:");
+                System.err.println("   • Join key values in both files");
+                System.err.println("   • Data formatting (numbers vs text)");
+                System.err.println("   • Case sensitivity");
+            }
+            
+            return result;
+        }
+    }
+    
+    /**
+     * Vendor join keys in key order for the sort-merge and binary-search joins.
+     * A vendor file that already arrives sorted keeps its order; otherwise the keys are stably sorted once.
+     */
+    static final class SortedVendorKeys {
+        private final KeyEncoding encoding;
+        private final int[] positions;
+        private final double[] numericKeys;
+        private final String[] textKeys;
+        private int mergeCursor;
+        private boolean merging = true;
+        private int lookups;
+        private int firstOutOfOrderLookup = -1;
+        private double lastNumericKey = Double.NEGATIVE_INFINITY;
+        private String lastTextKey;
+        
+        SortedVendorKeys(List<Map<String, Object>> vendorData, String keyColumn, KeyEncoding encoding, boolean alreadySorted) {
+            this.encoding = encoding;
+            
+            // Keep only vendor records whose key can match anything under this encoding
+            int[] keptPositions = new int[vendorData.size()];
+            double[] keptNumeric = encoding == KeyEncoding.NUMERIC ? new double[vendorData.size()] : null;
+            String[] keptText = encoding == KeyEncoding.TEXT ? new String[vendorData.size()] : null;
+            int count = 0;
+            for (int i = 0; i < vendorData.size(); i++) {
+                Object vendorValue = vendorData.get(i).get(keyColumn);
+                if (vendorValue == null || vendorValue.toString().trim().isEmpty()) {
+                    continue;
+                }
+                if (keptNumeric != null) {
+                    double num = finiteNumericKey(vendorValue);
+                    if (Double.isNaN(num)) {
+                        continue;
+                    }
+                    keptNumeric[count] = num;
+                } else {
+                    keptText[count] = canonicalKeyText(vendorValue);
+                }
+                keptPositions[count++] = i;
+            }
+            
+            if (alreadySorted) {
+                positions = Arrays.copyOf(keptPositions, count);
+                numericKeys = keptNumeric != null ? Arrays.copyOf(keptNumeric, count) : null;
+                textKeys = keptText != null ? Arrays.copyOf(keptText, count) : null;
+                return;
+            }
+            
+            // Stable sort, so equal keys keep vendor file order and the first match stays the same
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            if (keptNumeric != null) {
+                Arrays.sort(order, (a, b) -> keptNumeric[a] < keptNumeric[b] ? -1 : (keptNumeric[a] > keptNumeric[b] ? 1 : 0));
+            } else {
+                Arrays.sort(order, (a, b) -> keptText[a].compareTo(keptText[b]));
+            }
+            positions = new int[count];
+            numericKeys = keptNumeric != null ? new double[count] : null;
+            textKeys = keptText != null ? new String[count] : null;
+            for (int i = 0; i < count; i++) {
+                positions[i] = keptPositions[order[i]];
+                if (numericKeys != null) {
+                    numericKeys[i] = keptNumeric[order[i]];
+                } else {
+                    textKeys[i] = keptText[order[i]];
+                }
+            }
+        }
+        
+        /**
+         * Vendor file position of the first record matching the main key, or -1.
+         * While main keys arrive in non-decreasing order a merge cursor replaces the binary search;
+         * the first key below its predecessor switches to binary search for the rest of the join.
+         */
+        int findFirstMatch(Object mainValue) {
+            if (encoding == KeyEncoding.NUMERIC) {
+                double key = finiteNumericKey(mainValue);
+                if (Double.isNaN(key)) {
+                    return -1;
+                }
+                lookups++;
+                if (merging && key < lastNumericKey) {
+                    stopMerging();
+                }
+                lastNumericKey = key;
+                int start;
+                if (merging) {
+                    while (mergeCursor < numericKeys.length && key - numericKeys[mergeCursor] >= NUMERIC_MATCH_TOLERANCE) {
+                        mergeCursor++;
+                    }
+                    start = mergeCursor;
+                } else {
+                    start = firstNotBelowTolerance(key);
+                }
+                
+                // Several distinct keys can fall within tolerance; the earliest vendor record among them wins
+                int best = -1;
+                for (int i = start; i < numericKeys.length && numericKeys[i] - key < NUMERIC_MATCH_TOLERANCE; i = nextDistinctNumeric(i)) {
+                    if (best < 0 || positions[i] < best) {
+                        best = positions[i];
+                    }
+                }
+                return best;
+            }
+            
+            String key = canonicalKeyText(mainValue);
+            lookups++;
+            if (merging && lastTextKey != null && key.compareTo(lastTextKey) < 0) {
+                stopMerging();
+            }
+            lastTextKey = key;
+            int start;
+            if (merging) {
+                while (mergeCursor < textKeys.length && textKeys[mergeCursor].compareTo(key) < 0) {
+                    mergeCursor++;
+                }
+                start = mergeCursor;
+            } else {
+                int low = 0, high = textKeys.length;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (textKeys[mid].compareTo(key) < 0) low = mid + 1; else high = mid;
+                }
+                start = low;
+            }
+            return start < textKeys.length && textKeys[start].equals(key) ? positions[start] : -1;
+        }
+        
+        private void stopMerging() {
+            merging = false;
+            firstOutOfOrderLookup = lookups;
+        }
+        
+        /**
+         * Number of the first main key that arrived out of order (counting from 1), or -1 if all were in order
+         */
+        int getFirstOutOfOrderLookup() {
+            return firstOutOfOrderLookup;
+        }
+        
+        /**
+         * First index whose numeric key is not more than the tolerance below the main key
+         */
+        private int firstNotBelowTolerance(double key) {
+            int low = 0, high = numericKeys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (key - numericKeys[mid] >= NUMERIC_MATCH_TOLERANCE) low = mid + 1; else high = mid;
+            }
+            return low;
+        }
+        
+        /**
+         * First index after i holding a larger numeric key; the first of a run of equal keys is its earliest vendor record
+         */
+        private int nextDistinctNumeric(int i) {
+            double current = numericKeys[i];
+            int low = i + 1, high = numericKeys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (numericKeys[mid] <= current) low = mid + 1; else high = mid;
+            }
+            return low;
+        }
+    }
+    
+    /**
+     * HyperLogLog distinct-count sketch (1024 registers, ~3% standard error) with small-range correction
+     */
+    private static final class HyperLogLog {
+        private static final int PRECISION = 10;
+        private static final int REGISTERS = 1 << PRECISION;
+        
+        private final byte[] registers = new byte[REGISTERS];
+        
+        void add(String value) {
+            long hash = BloomFilter.hashText(value);
+            int index = (int) (hash >>> (64 - PRECISION));
+            int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+            if (rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
+        }
+        
+        long estimate() {
+            double sum = 0;
+            int zeroRegisters = 0;
+            for (byte register : registers) {
+                sum += 1.0 / (1L << register);
+                if (register == 0) {
+                    zeroRegisters++;
+                }
+            }
+            double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+            double estimate = alpha * REGISTERS * REGISTERS / sum;
+            if (estimate <= 2.5 * REGISTERS && zeroRegisters > 0) {
+                // Linear counting is far more accurate while many registers are still empty
+                estimate = REGISTERS * Math.log((double) REGISTERS / zeroRegisters);
+            }
+            return Math.round(estimate);
+        }
+    }
+    
+    /**
+     * Pre-filter built from the vendor join keys, used to skip main rows that cannot match
+     */
+    public static final class VendorKeyFilter {
+        private final SheetReadResult vendorRead;
+        private String[] joinKeys;
+        private KeyEncoding keyEncoding;
+        private BloomFilter bloomFilter;
+        
+        VendorKeyFilter(SheetReadResult vendorRead) {
+            this.vendorRead = vendorRead;
+        }
+        
+        /**
+         * Detect the join key against the main headers and compile the vendor keys into a Bloom filter.
+         * Returns the main join column, or null if no key was found.
+         */
+        String bindMainColumns(List<String> mainHeaders) {
+            List<Map<String, Object>> vendorData = vendorRead.rows;
+            if (vendorData.isEmpty()) {
+                return null;
+            }
+            joinKeys = detectBestJoinKey(new HashSet<>(mainHeaders), new HashSet<>(vendorData.get(0).keySet()));
+            if (joinKeys[0] == null || joinKeys[1] == null) {
+                joinKeys = null;
+                return null;
+            }
+            
+            ColumnProfile vendorKeyProfile = vendorRead.getProfile(joinKeys[1]);
+            keyEncoding = vendorKeyProfile != null ? vendorKeyProfile.keyEncoding() : KeyEncoding.MIXED;
+            
+            // Each numeric key goes into its bucket and both neighbours so tolerance matches are never lost
+            bloomFilter = new BloomFilter(vendorData.size() * 4, BLOOM_FALSE_POSITIVE_RATE);
+            for (Map<String, Object> vendorRecord : vendorData) {
+                Object vendorValue = vendorRecord.get(joinKeys[1]);
+                if (vendorValue == null) {
+                    continue;
+                }
+                if (keyEncoding != KeyEncoding.NUMERIC) {
+                    bloomFilter.putText(canonicalKeyText(vendorValue));
+                }
+                Long bucket = keyEncoding != KeyEncoding.TEXT ? numericKeyBucket(vendorValue) : null;
+                if (bucket != null) {
+                    bloomFilter.putNumber(bucket - 1);
+                    bloomFilter.putNumber(bucket);
+                    bloomFilter.putNumber(bucket + 1);
+                }
+            }
+            System.out.println("🧹 Vendor key pre-filter built on Vendor[" + joinKeys[1] + "] for Main[" + joinKeys[0]
+                    + "] using " + keyEncoding + " key encoding");
+            return joinKeys[0];
+        }
+        
+        /**
+         * False means no vendor record can match this main key; true may be a false positive
+         */
+        boolean mightMatch(Object mainValue) {
+            if (bloomFilter == null) {
+                return true;
+            }
+            if (keyEncoding != KeyEncoding.NUMERIC && bloomFilter.mightContainText(canonicalKeyText(mainValue))) {
+                return true;
+            }
+            if (keyEncoding == KeyEncoding.TEXT) {
+                return false;
+            }
+            Long bucket = numericKeyBucket(mainValue);
+            return bucket != null && bloomFilter.mightContainNumber(bucket);
+        }
+        
+        String[] getJoinKeys() {
+            return joinKeys;
+        }
+    }
+    
+    /**
+     * Fixed-size Bloom filter over text and numeric join keys using double hashing
+     */
+    private static final class BloomFilter {
+        private final long[] bits;
+        private final int numBits;
+        private final int numHashes;
+        
+        BloomFilter(int expectedEntries, double falsePositiveRate) {
+            int entries = Math.max(1, expectedEntries);
+            long optimalBits = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            numBits = (int) Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 63));
+            numHashes = Math.max(1, (int) Math.round((double) numBits / entries * Math.log(2)));
+            bits = new long[(numBits + 63) / 64];
+        }
+        
+        void putText(String key) {
+            put(hashText(key));
+        }
+        
+        void putNumber(long key) {
+            put(mix64(key));
+        }
+        
+        boolean mightContainText(String key) {
+            return mightContain(hashText(key));
+        }
+        
+        boolean mightContainNumber(long key) {
+            return mightContain(mix64(key));
+        }
+        
+        private void put(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < numHashes; i++) {
+                int index = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+                bits[index >>> 6] |= 1L << index;
+            }
+        }
+        
+        private boolean mightContain(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < numHashes; i++) {
+                int index = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+                if ((bits[index >>> 6] & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * 64-bit FNV-1a over the UTF-16 chars
+         */
+        static long hashText(String key) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                hash ^= key.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return mix64(hash);
+        }
+        
+        /**
+         * SplitMix64 finalizer
+         */
+        private static long mix64(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
 } 
@@ -0,0 +1,162 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The sort-merge and binary-search joins must pick the same vendor record as the nested loop
+ * (the first vendor record that isMatchingValue accepts), and the vendor key filter must never
+ * reject a main key that has a match
+ */
+class JoinStrategyTest {
+
+    private static final double[] NEAR_TOLERANCE_OFFSETS = {0, 0.00004, -0.00006, 0.00009, 0.0002, -0.0003};
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void numericKeysMatchWithinToleranceLikeTheNestedLoop() {
+        Random random = new Random(42);
+        List<Object> vendorKeys = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            vendorKeys.add(random.nextInt(60) + NEAR_TOLERANCE_OFFSETS[random.nextInt(NEAR_TOLERANCE_OFFSETS.length)]);
+        }
+        List<Object> mainKeys = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            mainKeys.add(random.nextInt(70) + NEAR_TOLERANCE_OFFSETS[random.nextInt(NEAR_TOLERANCE_OFFSETS.length)]);
+        }
+
+        assertStrategiesAgree(vendorKeys, mainKeys, ExcelRightJoin.KeyEncoding.NUMERIC,
+                Comparator.comparingDouble(key -> (Double) key));
+    }
+
+    @Test
+    void textKeysIgnoreCaseAndSurroundingWhitespaceLikeTheNestedLoop() {
+        String[] pool = {"abc", " ABC", "Abc ", "b", "B ", "école", "ÉCOLE", "x-1", "X-1 ", "zz", "id 7", "ID 7", "missing", "Zz"};
+        Random random = new Random(7);
+        List<Object> vendorKeys = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            vendorKeys.add(pool[random.nextInt(pool.length - 2)]);
+        }
+        List<Object> mainKeys = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            mainKeys.add(pool[random.nextInt(pool.length)]);
+        }
+
+        assertStrategiesAgree(vendorKeys, mainKeys, ExcelRightJoin.KeyEncoding.TEXT,
+                Comparator.comparing(key -> key.toString().trim().toLowerCase(Locale.ROOT)));
+    }
+
+    @Test
+    void mixedKeysJoinLikeTheNestedLoop() {
+        List<Object> vendorKeys = Arrays.asList(1.0, "A1", "2", 3.00005, "a1 ", 2.0, "007");
+        List<Object> mainKeys = Arrays.asList("1", 2.0, "a1", 3.0, 7.0, "B2", 1.00002, "2.0");
+        assertEquals(ExcelRightJoin.KeyEncoding.MIXED, vendorProfile(vendorKeys).keyEncoding());
+
+        assertJoinMatchesNestedLoop(vendorKeys, mainKeys);
+        assertFilterKeepsEveryMatch(vendorKeys, mainKeys);
+    }
+
+    /**
+     * Check the vendor key lookups in merge order and in shuffled (binary search) order, for an
+     * unsorted and an already sorted vendor file, then the whole join and the pre-filter
+     */
+    private void assertStrategiesAgree(List<Object> vendorKeys, List<Object> mainKeys,
+            ExcelRightJoin.KeyEncoding encoding, Comparator<Object> keyOrder) {
+        List<Object> sortedVendorKeys = new ArrayList<>(vendorKeys);
+        sortedVendorKeys.sort(keyOrder);
+        List<Object> sortedMainKeys = new ArrayList<>(mainKeys);
+        sortedMainKeys.sort(keyOrder);
+        List<Object> shuffledMainKeys = new ArrayList<>(mainKeys);
+        Collections.shuffle(shuffledMainKeys, new Random(1));
+
+        for (List<Object> vendorOrder : Arrays.asList(vendorKeys, sortedVendorKeys)) {
+            List<Map<String, Object>> vendorRows = rows(vendorOrder, "vendor");
+            ExcelRightJoin.ColumnProfile profile = vendorProfile(vendorOrder);
+            assertEquals(encoding, profile.keyEncoding());
+            boolean vendorSorted = profile.isOrderedFor(encoding);
+            assertEquals(vendorOrder == sortedVendorKeys, vendorSorted, "vendor sortedness");
+
+            ExcelRightJoin.SortedVendorKeys merged = new ExcelRightJoin.SortedVendorKeys(vendorRows, "id", encoding, vendorSorted);
+            assertLookupsMatchNestedLoop(merged, vendorRows, sortedMainKeys);
+            assertEquals(-1, merged.getFirstOutOfOrderLookup(), "sorted main keys should stay on the merge cursor");
+
+            ExcelRightJoin.SortedVendorKeys searched = new ExcelRightJoin.SortedVendorKeys(vendorRows, "id", encoding, vendorSorted);
+            assertLookupsMatchNestedLoop(searched, vendorRows, shuffledMainKeys);
+            assertNotEquals(-1, searched.getFirstOutOfOrderLookup(), "shuffled main keys should switch to binary search");
+
+            assertJoinMatchesNestedLoop(vendorOrder, sortedMainKeys);
+            assertJoinMatchesNestedLoop(vendorOrder, shuffledMainKeys);
+            assertFilterKeepsEveryMatch(vendorOrder, mainKeys);
+        }
+    }
+
+    private static void assertLookupsMatchNestedLoop(ExcelRightJoin.SortedVendorKeys vendorKeys,
+            List<Map<String, Object>> vendorRows, List<Object> mainKeys) {
+        for (Object mainKey : mainKeys) {
+            assertEquals(nestedLoopMatch(vendorRows, mainKey), vendorKeys.findFirstMatch(mainKey), "match for main key " + mainKey);
+        }
+    }
+
+    private void assertJoinMatchesNestedLoop(List<Object> vendorKeys, List<Object> mainKeys) {
+        List<Map<String, Object>> vendorRows = rows(vendorKeys, "vendor");
+        List<Map<String, Object>> mainRows = rows(mainKeys, "main");
+
+        List<Map<String, Object>> expected = new ArrayList<>();
+        for (Map<String, Object> mainRow : mainRows) {
+            int match = nestedLoopMatch(vendorRows, mainRow.get("id"));
+            if (match >= 0) {
+                Map<String, Object> joined = new LinkedHashMap<>(mainRow);
+                joined.put("vendor", vendorRows.get(match).get("vendor"));
+                expected.add(joined);
+            }
+        }
+
+        // No main file on disk, so the join falls back to the records' column order
+        String missingMainFile = tempDir.resolve("missing.xlsx").toString();
+        assertEquals(expected, ExcelRightJoin.performInnerJoin(mainRows, vendorRows, missingMainFile));
+    }
+
+    private static void assertFilterKeepsEveryMatch(List<Object> vendorKeys, List<Object> mainKeys) {
+        List<Map<String, Object>> vendorRows = rows(vendorKeys, "vendor");
+        ExcelRightJoin.VendorKeyFilter filter = new ExcelRightJoin.VendorKeyFilter(ExcelRightJoin.SheetReadResult.fromRows(vendorRows));
+        assertEquals("id", filter.bindMainColumns(Arrays.asList("id", "main")));
+        for (Object mainKey : mainKeys) {
+            if (nestedLoopMatch(vendorRows, mainKey) >= 0) {
+                assertTrue(filter.mightMatch(mainKey), "pre-filter rejected matching key " + mainKey);
+            }
+        }
+    }
+
+    /**
+     * Position of the first vendor record the original nested loop would attach, or -1
+     */
+    private static int nestedLoopMatch(List<Map<String, Object>> vendorRows, Object mainKey) {
+        for (int i = 0; i < vendorRows.size(); i++) {
+            Object vendorKey = vendorRows.get(i).get("id");
+            if (vendorKey != null && ExcelRightJoin.isMatchingValue(mainKey, vendorKey)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static ExcelRightJoin.ColumnProfile vendorProfile(List<Object> vendorKeys) {
+        return ExcelRightJoin.SheetReadResult.fromRows(rows(vendorKeys, "vendor")).getProfile("id");
+    }
+
+    private static List<Map<String, Object>> rows(List<Object> keys, String payloadColumn) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", keys.get(i));
+            row.put(payloadColumn, payloadColumn + "-" + i);
+            rows.add(row);
+        }
+        return rows;
+    }
+}
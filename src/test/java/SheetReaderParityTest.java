@@ -0,0 +1,249 @@
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellFormula;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTPhoneticRun;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellFormulaType;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The streaming sheet reader must return what the POI user model (XSSFWorkbook + getCellValue) returns
+ */
+class SheetReaderParityTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void cellTypesMatchUserModel() throws IOException {
+        File file = tempDir.resolve("types.xlsx").toFile();
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            XSSFSheet sheet = workbook.createSheet("Data");
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd hh:mm"));
+            CellStyle builtinDateStyle = workbook.createCellStyle();
+            builtinDateStyle.setDataFormat((short) 14);
+
+            header(sheet, "id", "name", "amount", "when", "flag", "error", "note", "total");
+            Row row = sheet.createRow(1);
+            row.createCell(0).setCellValue(1);
+            row.createCell(1).setCellValue("Alice");
+            row.createCell(2).setCellValue(10.5);
+            Cell when = row.createCell(3);
+            when.setCellValue(new GregorianCalendar(2024, Calendar.MARCH, 5, 14, 30).getTime());
+            when.setCellStyle(dateStyle);
+            row.createCell(4).setCellValue(true);
+            row.createCell(5).setCellErrorValue(FormulaError.DIV0.getCode());
+            inlineString((XSSFCell) row.createCell(6), "line_x000D_break");
+            row.createCell(7).setCellFormula("C2*2");
+
+            row = sheet.createRow(2);
+            row.createCell(0).setCellValue(2);
+            XSSFRichTextString rich = new XSSFRichTextString("  Bob  ");
+            rich.applyFont(0, 4, workbook.createFont());
+            row.createCell(1).setCellValue(rich);
+            row.createCell(2).setCellValue(1e20);
+            Cell builtinDate = row.createCell(3);
+            builtinDate.setCellValue(45000);
+            builtinDate.setCellStyle(builtinDateStyle);
+            row.createCell(4).setCellValue(false);
+            row.createCell(5).setBlank();
+            row.createCell(6).setCellValue("");
+
+            // A row of blank cells is skipped
+            row = sheet.createRow(3);
+            row.createCell(0).setBlank();
+            row.createCell(1).setCellValue(" ");
+
+            // A ragged row ends early
+            row = sheet.createRow(5);
+            row.createCell(0).setCellValue("3");
+            row.createCell(1).setCellValue("Carol");
+            write(workbook, file);
+        }
+
+        assertParity(file);
+    }
+
+    @Test
+    void datesUseTheWorkbookDateSystem() throws IOException {
+        File file = tempDir.resolve("date1904.xlsx").toFile();
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            workbook.getCTWorkbook().addNewWorkbookPr().setDate1904(true);
+            XSSFSheet sheet = workbook.createSheet("Data");
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat((short) 14);
+            header(sheet, "id", "when");
+            Row row = sheet.createRow(1);
+            row.createCell(0).setCellValue(1);
+            Cell when = row.createCell(1);
+            when.setCellValue(30000);
+            when.setCellStyle(dateStyle);
+            write(workbook, file);
+        }
+
+        assertParity(file);
+    }
+
+    @Test
+    void sharedAndArrayFormulasAreRebuiltPerCell() throws IOException {
+        File file = tempDir.resolve("formulas.xlsx").toFile();
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            XSSFSheet sheet = workbook.createSheet("Data");
+            workbook.createSheet("Rates Sheet");
+            XSSFName rate = workbook.createName();
+            rate.setNameName("Rate");
+            rate.setRefersToFormula("'Rates Sheet'!$A$1");
+
+            header(sheet, "id", "double", "running", "tripled", "rated", "next");
+            for (int r = 1; r <= 4; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue(r);
+                sharedFormula((XSSFCell) row.createCell(1), 0, r == 1 ? "B2:B5" : null, "A2*2");
+                sharedFormula((XSSFCell) row.createCell(2), 1, r == 1 ? "C2:C5" : null, "SUM($A$2:A2)");
+                row.createCell(3).setCellValue(r * 3);
+                sharedFormula((XSSFCell) row.createCell(4), 2, r == 1 ? "E2:E5" : null, "Rate*A2");
+            }
+            // A shared formula filled right along a row
+            Row firstRow = sheet.getRow(1);
+            sharedFormula((XSSFCell) firstRow.createCell(5), 3, "F2:G2", "A2+1");
+            sharedFormula((XSSFCell) firstRow.createCell(6), 3, null, "A2+1");
+            sheet.setArrayFormula("A2:A4*3", CellRangeAddress.valueOf("D2:D4"));
+            write(workbook, file);
+        }
+
+        List<Map<String, Object>> rows = assertParity(file);
+        assertEquals("A2*2", rows.get(0).get("double"));
+        assertEquals("A4*2", rows.get(2).get("double"));
+        assertEquals("SUM($A$2:A5)", rows.get(3).get("running"));
+        assertEquals("Rate*A3", rows.get(1).get("rated"));
+        assertEquals("A2:A4*3", rows.get(2).get("tripled"));
+        assertEquals(12.0, rows.get(3).get("tripled"));
+    }
+
+    @Test
+    void phoneticRunsAreLeftOutOfStrings() throws IOException {
+        File file = tempDir.resolve("phonetic.xlsx").toFile();
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            XSSFSheet sheet = workbook.createSheet("Data");
+            header(sheet, "id", "city");
+            Row row = sheet.createRow(1);
+            row.createCell(0).setCellValue(1);
+            XSSFRichTextString city = new XSSFRichTextString("東京");
+            CTPhoneticRun reading = city.getCTRst().addNewRPh();
+            reading.setSb(0);
+            reading.setEb(2);
+            reading.setT("トウキョウ");
+            row.createCell(1).setCellValue(city);
+            write(workbook, file);
+        }
+
+        List<Map<String, Object>> rows = assertParity(file);
+        assertEquals("東京", rows.get(0).get("city"));
+    }
+
+    @Test
+    void duplicatedHeaderKeepsFirstPositionAndLastValue() throws IOException {
+        File file = tempDir.resolve("duplicates.xlsx").toFile();
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            XSSFSheet sheet = workbook.createSheet("Data");
+            header(sheet, "id", "name", "id");
+            Row row = sheet.createRow(1);
+            row.createCell(0).setCellValue(1);
+            row.createCell(1).setCellValue("Alice");
+            row.createCell(2).setCellValue(9);
+            write(workbook, file);
+        }
+
+        List<Map<String, Object>> rows = assertParity(file);
+        assertEquals(Arrays.asList("id", "name"), new ArrayList<>(rows.get(0).keySet()));
+        assertEquals(9.0, rows.get(0).get("id"));
+    }
+
+    /**
+     * Read the file both ways and compare every row, including key order
+     */
+    private static List<Map<String, Object>> assertParity(File file) throws IOException {
+        List<Map<String, Object>> expected = readWithUserModel(file);
+        List<Map<String, Object>> actual = ExcelRightJoin.readExcelFile(file.getPath());
+        assertEquals(expected.size(), actual.size(), "row count");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(new ArrayList<>(expected.get(i).keySet()), new ArrayList<>(actual.get(i).keySet()), "columns of row " + i);
+            assertEquals(expected.get(i), actual.get(i), "row " + i);
+        }
+        return actual;
+    }
+
+    /**
+     * Rows as the user-model reader built them: headers from row 0, cells through getCellValue
+     */
+    private static List<Map<String, Object>> readWithUserModel(File file) throws IOException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        try (InputStream in = new FileInputStream(file); Workbook workbook = new XSSFWorkbook(in)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            List<String> headers = new ArrayList<>();
+            for (Cell cell : sheet.getRow(0)) {
+                headers.add(cell.getStringCellValue());
+            }
+            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+                Row row = sheet.getRow(i);
+                if (row == null) {
+                    continue;
+                }
+                Map<String, Object> rowData = new LinkedHashMap<>();
+                boolean hasData = false;
+                for (int j = 0; j < headers.size() && j < row.getLastCellNum(); j++) {
+                    Object value = ExcelRightJoin.getCellValue(row.getCell(j));
+                    if (value != null && !value.toString().trim().isEmpty()) {
+                        hasData = true;
+                    }
+                    rowData.put(headers.get(j), value);
+                }
+                if (hasData) {
+                    rows.add(rowData);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void header(Sheet sheet, String... names) {
+        Row row = sheet.createRow(0);
+        for (int i = 0; i < names.length; i++) {
+            row.createCell(i).setCellValue(names[i]);
+        }
+    }
+
+    private static void inlineString(XSSFCell cell, String text) {
+        cell.getCTCell().setT(STCellType.INLINE_STR);
+        cell.getCTCell().addNewIs().setT(text);
+    }
+
+    /**
+     * Write a shared formula cell as Excel does: the master holds the text and range, the others only the group index
+     */
+    private static void sharedFormula(XSSFCell cell, int sharedIndex, String masterRange, String masterFormula) {
+        cell.setCellValue(0);
+        CTCellFormula formula = cell.getCTCell().addNewF();
+        formula.setT(STCellFormulaType.SHARED);
+        formula.setSi(sharedIndex);
+        if (masterRange != null) {
+            formula.setRef(masterRange);
+            formula.setStringValue(masterFormula);
+        }
+    }
+
+    private static void write(Workbook workbook, File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            workbook.write(out);
+        }
+    }
+}